@@ -2,9 +2,14 @@ package ml.cristatus.todo;
 
 import ml.cristatus.todo.model.ToDoItem;
 import ml.cristatus.todo.repository.ToDoRepository;
+import ml.cristatus.todo.repository.ToDoRepositoryWithCompression;
 import ml.cristatus.todo.repository.ToDoRepositoryWithJSON;
 
 import java.io.PrintStream;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.InputMismatchException;
 import java.util.List;
 import java.util.Scanner;
@@ -18,7 +23,10 @@ import java.util.Scanner;
 public class ToDoApp {
     public static void main(String[] args) {
         System.out.println(TITLE);
-        REPL(new Scanner(System.in), System.out);
+        ToDoRepository repository = Arrays.asList(args).contains(COMPRESSED)
+                ? new ToDoRepositoryWithCompression()
+                : new ToDoRepositoryWithJSON();
+        REPL(repository, new Scanner(System.in), System.out);
     }
 
     private static final String TITLE = "\n\n========ToDo App========\n\n";
@@ -32,21 +40,32 @@ public class ToDoApp {
             "\n - print\n\tDisplays all tasks in order of their creation." +
             "\n - update <id> <new text>\n\tUpdates the item with the given " +
             "id to store the new text." +
+            "\n - due <id> <yyyy-MM-dd HH:mm>\n\tSets the time at which the " +
+            "task with the given id is due. Leave the time out to remove it." +
+            "\n - prio <id> <priority>\n\tSets the priority (an integer) of " +
+            "the task with the given id. Higher is more important." +
+            "\n - next <n>\n\tDisplays the next n pending tasks that are due." +
+            "\n - overdue\n\tDisplays the pending tasks that are overdue." +
+            "\n - top <n>\n\tDisplays the n pending tasks with the highest " +
+            "priorities." +
             "\n - del <id>\n\tDeletes the task with the given id." +
             "\n - clear\n\tDeletes all COMPLETED tasks." +
             "\n - burn\n\tDeletes ALL tasks and empties the list." +
             "\n - exit\n\tExit the program.";
     private static final String PROMPT = ">> ";
     private static final String ABSENT = "No item found with the given ID.";
+    private static final String COMPRESSED = "--compressed";
 
     /**
      * The "Read, Evaluate, Print, Loop" (REPL) method.
      *
-     * @param in  The input source.
-     * @param out The {@link PrintStream} to print to.
+     * @param repository The repository to work with.
+     * @param in         The input source.
+     * @param out        The {@link PrintStream} to print to.
      */
-    private static void REPL(Scanner in, PrintStream out) {
-        ToDoRepository repository = new ToDoRepositoryWithJSON();
+    private static void REPL(ToDoRepository repository,
+                             Scanner in,
+                             PrintStream out) {
         out.println(HELP);
         out.println("\n");
         printAll(repository, out);
@@ -89,6 +108,22 @@ public class ToDoApp {
             case "update":
                 update(repository, in, out);
                 break;
+            case "due":
+                setDue(repository, in, out);
+                break;
+            case "prio":
+                setPriority(repository, in, out);
+                break;
+            case "next":
+                printList(repository.findNextDue(inputCount(in)), out);
+                break;
+            case "overdue":
+                printList(repository.findOverdue(System.currentTimeMillis()),
+                        out);
+                break;
+            case "top":
+                printList(repository.findTopPriority(inputCount(in)), out);
+                break;
             case "del":
                 delete(repository, in, out);
                 break;
@@ -124,6 +159,37 @@ public class ToDoApp {
         }
     }
 
+    /**
+     * Tries to input a valid count. If anything fails, it returns 0.
+     *
+     * @param in The input source.
+     * @return The count inputted.
+     */
+    private static int inputCount(Scanner in) {
+        try {
+            return in.nextInt();
+        } catch (InputMismatchException exception) {
+            in.nextLine();  // skip the line, start afresh
+            return 0;
+        }
+    }
+
+    /**
+     * Prints the given items, one per line.
+     *
+     * @param items The items to print.
+     * @param out   The {@link PrintStream} to print to.
+     */
+    private static void printList(List<ToDoItem> items, PrintStream out) {
+        if (items.isEmpty()) {
+            out.println("No matching tasks.");
+            return;
+        }
+        for (ToDoItem toDoItem : items) {
+            out.println(toDoItem);
+        }
+    }
+
     /**
      * Prints all the items in the list.
      *
@@ -203,6 +269,68 @@ public class ToDoApp {
         repository.update(item);
     }
 
+    /**
+     * Sets the due time of the item with the input ID (if valid).
+     *
+     * @param repository The repository to work with.
+     * @param in         The input source.
+     * @param out        The {@link PrintStream} to print to.
+     */
+    private static void setDue(ToDoRepository repository,
+                               Scanner in,
+                               PrintStream out) {
+        ToDoItem item = input(repository, in);
+        if (item == null) {
+            out.println(ABSENT);
+            return;
+        }
+        String text = in.nextLine().trim();
+        if (text.isEmpty()) {
+            item.setDue(null);
+        } else {
+            SimpleDateFormat format =
+                    new SimpleDateFormat(ToDoItem.DUE_FORMAT);
+            format.setLenient(false);   // reject dates like 2016-13-45
+            ParsePosition position = new ParsePosition(0);
+            Date due = format.parse(text, position);
+            // parse() happily ignores anything after the date, so check
+            if (due == null || position.getIndex() != text.length()) {
+                out.println("Please enter the time as " + ToDoItem.DUE_FORMAT
+                        + ".");
+                return;
+            }
+            item.setDue(due.getTime());
+        }
+        out.println("Updated item #" + item.getId() + ": " + item);
+        repository.update(item);
+    }
+
+    /**
+     * Sets the priority of the item with the input ID (if valid).
+     *
+     * @param repository The repository to work with.
+     * @param in         The input source.
+     * @param out        The {@link PrintStream} to print to.
+     */
+    private static void setPriority(ToDoRepository repository,
+                                    Scanner in,
+                                    PrintStream out) {
+        ToDoItem item = input(repository, in);
+        if (item == null) {
+            out.println(ABSENT);
+            return;
+        }
+        try {
+            item.setPriority(in.nextInt());
+        } catch (InputMismatchException exception) {
+            in.nextLine();  // skip the line, start afresh
+            out.println("Please enter an integer for the priority.");
+            return;
+        }
+        out.println("Updated item #" + item.getId() + ": " + item);
+        repository.update(item);
+    }
+
     /**
      * Deletes the item with the input ID (if valid).
      *
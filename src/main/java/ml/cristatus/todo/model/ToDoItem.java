@@ -1,5 +1,8 @@
 package ml.cristatus.todo.model;
 
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
 /**
  * This is the basic unit of information in this system. Everything is built
  * around this class. This class defines a basic task that has a unique ID
@@ -7,12 +10,22 @@ package ml.cristatus.todo.model;
  * updated freely. But the ID is updated only once by the repository. Every
  * task also has a <code>completed</code> boolean flag to indicate its state
  * of completion.
+ * <p>
+ * A task may optionally be scheduled with a due time and a priority. These
+ * are used by repositories to answer queries like "which tasks are due
+ * next?" or "which tasks are overdue?".
  *
  * @author Subhomoy Haldar
  * @version 0.3
  */
 public class ToDoItem implements Comparable<ToDoItem> {
 
+    /**
+     * The format (for {@link java.text.SimpleDateFormat}) used to display
+     * and enter the due time.
+     */
+    public static final String DUE_FORMAT = "yyyy-MM-dd HH:mm";
+
     /**
      * The unique and immutable ID.
      */
@@ -25,6 +38,16 @@ public class ToDoItem implements Comparable<ToDoItem> {
      * The status of the task/item.
      */
     private boolean completed;
+    /**
+     * The time at which the task is due, in milliseconds since the epoch,
+     * or <code>null</code> if the task has no due time.
+     */
+    private Long due;
+    /**
+     * The priority of the task. Tasks with a higher priority are more
+     * important. The default priority is 0.
+     */
+    private int priority;
 
     /**
      * This constructor creates a new ToDoItem with ta unique ID and text.
@@ -37,6 +60,20 @@ public class ToDoItem implements Comparable<ToDoItem> {
         this.id = id;
     }
 
+    /**
+     * This constructor creates an exact copy of the given ToDoItem. It is
+     * used by repositories to make sure that the items they hold cannot be
+     * modified from the outside.
+     *
+     * @param item The ToDoItem to copy.
+     */
+    public ToDoItem(ToDoItem item) {
+        this(item.name, item.id);
+        this.completed = item.completed;
+        this.due = item.due;
+        this.priority = item.priority;
+    }
+
     /**
      * Compares two tasks based on their order of creation. A ToDoItem
      * created later will have a higher ID.
@@ -96,6 +133,45 @@ public class ToDoItem implements Comparable<ToDoItem> {
         this.completed = completed;
     }
 
+    /**
+     * Returns the time at which this task is due, in milliseconds since the
+     * epoch, or <code>null</code> if it has no due time.
+     *
+     * @return The due time of this task, or <code>null</code>.
+     */
+    public Long getDue() {
+        return due;
+    }
+
+    /**
+     * Sets the time at which this task is due.
+     *
+     * @param due The due time in milliseconds since the epoch, or
+     *            <code>null</code> to remove the due time.
+     */
+    public void setDue(Long due) {
+        this.due = due;
+    }
+
+    /**
+     * Returns the priority of this task. A higher value means that the task
+     * is more important.
+     *
+     * @return The priority of this task.
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Sets the priority of this task.
+     *
+     * @param priority The new priority of this task.
+     */
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
     /**
      * Check if the argument is exactly equal to this item.
      *
@@ -117,6 +193,14 @@ public class ToDoItem implements Comparable<ToDoItem> {
      */
     @Override
     public String toString() {
-        return " - " + name + " [ID: " + id + " Completed: " + completed + "]";
+        String details = " [ID: " + id + " Completed: " + completed;
+        if (priority != 0) {
+            details += " Priority: " + priority;
+        }
+        if (due != null) {
+            details += " Due: " + new SimpleDateFormat(DUE_FORMAT)
+                    .format(new Date(due));
+        }
+        return " - " + name + details + "]";
     }
 }
@@ -2,17 +2,31 @@ package ml.cristatus.todo.repository;
 
 import ml.cristatus.todo.model.ToDoItem;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.AbstractList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * This is an implementation of ToDoRepository that stores the items in
  * memory. This does not have a save mechanism. It must by backed by another
  * system to provide support for persistence.
+ * <p>
+ * The whole state (the items and the last ID handed out) is kept in an
+ * immutable {@link Snapshot} backed by a {@link PersistentSortedMap}. Writers
+ * build a new Snapshot and publish it atomically, while readers simply grab
+ * the current one. Therefore, {@link #findAll()} is consistent and does not
+ * need to copy, sort or lock anything.
+ * <p>
+ * The repository keeps its own copies of the items: it copies them when they
+ * are stored, and it hands out copies. So changing an item that was
+ * returned never affects the repository (or an older Snapshot) until it is
+ * passed to {@link #update(ToDoItem) update()}.
+ * <p>
+ * Every Snapshot also holds two indexes of the pending (not completed)
+ * tasks: one ordered by due time and one ordered by priority. They are
+ * maintained on every write, so the scheduling queries take O(log n + k)
+ * time instead of a scan and sort of all the items.
  *
  * @author Subhomoy Haldar
  * @version 0.3
@@ -20,27 +34,54 @@ import java.util.concurrent.atomic.AtomicLong;
 @SuppressWarnings("WeakerAccess")
 public class InMemoryToDoRepository implements ToDoRepository {
 
-    private AtomicLong currentId;
-    private ConcurrentMap<Long, ToDoItem> toDos;
+    private final AtomicReference<Snapshot> state;
 
     /**
      * Creates a new, empty repository with currentID at 0.
      */
     public InMemoryToDoRepository() {
-        currentId = new AtomicLong();
-        toDos = new ConcurrentHashMap<>();
+        state = new AtomicReference<>(Snapshot.EMPTY);
+    }
+
+    /**
+     * Creates a repository that holds the given items, and continues
+     * assigning IDs after the given one. This is used to restore a saved
+     * state.
+     *
+     * @param currentId The last ID that was assigned.
+     * @param items     The items to hold.
+     */
+    InMemoryToDoRepository(long currentId, Iterable<ToDoItem> items) {
+        Snapshot snapshot = Snapshot.EMPTY;
+        for (ToDoItem item : items) {
+            snapshot = snapshot.with(item);
+        }
+        state = new AtomicReference<>(snapshot.withCurrentId(currentId));
+    }
+
+    /**
+     * Returns the current state of the repository in O(1) time. The
+     * Snapshot never changes, even if the repository is modified later or
+     * the items handed out by it are modified.
+     *
+     * @return The current state of the repository.
+     */
+    Snapshot snapshot() {
+        return state.get();
     }
 
     /**
      * {@inheritDoc}
+     * <p>
+     * The returned List is an unmodifiable view of a snapshot of the
+     * repository, it does not reflect later modifications. Every element is
+     * a fresh copy, made when it is accessed.
      *
      * @return {@inheritDoc}
      */
     @Override
     public List<ToDoItem> findAll() {
-        List<ToDoItem> toDoItems = new ArrayList<>(toDos.values());
-        Collections.sort(toDoItems);
-        return toDoItems;
+        return state.get().getItems();
     }
 
     /**
@@ -50,7 +91,52 @@ public class InMemoryToDoRepository implements ToDoRepository {
      */
     @Override
     public ToDoItem findById(Long id) {
-        return toDos.get(id);
+        ToDoItem item = state.get().toDos.get(id);
+        return item == null ? null : new ToDoItem(item);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public List<ToDoItem> findNextDue(int count) {
+        return copies(state.get().byDue.firstValues(count));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public List<ToDoItem> findOverdue(long time) {
+        return copies(state.get().byDue.valuesBefore(
+                new IndexKey(time, Long.MIN_VALUE)));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public List<ToDoItem> findTopPriority(int count) {
+        return copies(state.get().byPriority.firstValues(count));
+    }
+
+    /**
+     * Replaces the items in the given (newly created) list with copies.
+     *
+     * @param items The list of items held by the repository.
+     * @return The same list, now holding copies.
+     */
+    private static List<ToDoItem> copies(List<ToDoItem> items) {
+        for (int i = 0; i < items.size(); i++) {
+            items.set(i, new ToDoItem(items.get(i)));
+        }
+        return items;
     }
 
     /**
@@ -60,9 +146,15 @@ public class InMemoryToDoRepository implements ToDoRepository {
      */
     @Override
     public Long insert(String text) {
-        Long id = currentId.incrementAndGet();
-        toDos.putIfAbsent(id, new ToDoItem(text, id));
-        return id;
+        while (true) {
+            Snapshot current = state.get();
+            long id = current.currentId + 1;
+            Snapshot next = current.with(new ToDoItem(text, id))
+                    .withCurrentId(id);
+            if (state.compareAndSet(current, next)) {
+                return id;
+            }
+        }
     }
 
     /**
@@ -72,21 +164,36 @@ public class InMemoryToDoRepository implements ToDoRepository {
      */
     @Override
     public void update(ToDoItem toDoItem) {
-        if (toDos.get(toDoItem.getId()) != null) {
-            toDos.replace(toDoItem.getId(), toDoItem);
+        while (true) {
+            Snapshot current = state.get();
+            if (current.toDos.get(toDoItem.getId()) == null) {
+                return;
+            }
+            Snapshot next = current.with(toDoItem);
+            if (state.compareAndSet(current, next)) {
+                return;
+            }
         }
     }
 
     /**
      * {@inheritDoc}
+     * <p>
+     * The currentID is reset to 0 when the list becomes empty.
      *
      * @return {@inheritDoc}
      */
     @Override
     public void delete(ToDoItem toDoItem) {
-        toDos.remove(toDoItem.getId());
-        if (toDos.isEmpty()) {
-            reset();
+        while (true) {
+            Snapshot current = state.get();
+            Snapshot next = current.without(toDoItem.getId());
+            if (next == current) {
+                return;
+            }
+            if (state.compareAndSet(current, next)) {
+                return;
+            }
         }
     }
 
@@ -99,9 +206,165 @@ public class InMemoryToDoRepository implements ToDoRepository {
     }
 
     /**
-     * Resets the currentID to 1 when the list is empty.
+     * An immutable, consistent view of the repository at some point in
+     * time: the items along with the last ID that was assigned, and the
+     * indexes of the pending items.
+     */
+    static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(0,
+                PersistentSortedMap.<Long, ToDoItem>empty(),
+                PersistentSortedMap.<IndexKey, ToDoItem>empty(),
+                PersistentSortedMap.<IndexKey, ToDoItem>empty());
+
+        private final long currentId;
+        private final PersistentSortedMap<Long, ToDoItem> toDos;
+        private final PersistentSortedMap<IndexKey, ToDoItem> byDue;
+        private final PersistentSortedMap<IndexKey, ToDoItem> byPriority;
+
+        private Snapshot(long currentId,
+                         PersistentSortedMap<Long, ToDoItem> toDos,
+                         PersistentSortedMap<IndexKey, ToDoItem> byDue,
+                         PersistentSortedMap<IndexKey, ToDoItem> byPriority) {
+            this.currentId = currentId;
+            this.toDos = toDos;
+            this.byDue = byDue;
+            this.byPriority = byPriority;
+        }
+
+        /**
+         * Returns the last ID that was assigned.
+         *
+         * @return The last ID that was assigned.
+         */
+        long getCurrentId() {
+            return currentId;
+        }
+
+        /**
+         * Returns (copies of) the items in the order that they were added.
+         *
+         * @return An unmodifiable, chronological list of ToDoItems.
+         */
+        List<ToDoItem> getItems() {
+            final List<ToDoItem> items = toDos.values();
+            return new AbstractList<ToDoItem>() {
+                @Override
+                public ToDoItem get(int index) {
+                    return new ToDoItem(items.get(index));
+                }
+
+                @Override
+                public int size() {
+                    return items.size();
+                }
+
+                @Override
+                public Iterator<ToDoItem> iterator() {
+                    final Iterator<ToDoItem> iterator = items.iterator();
+                    return new Iterator<ToDoItem>() {
+                        @Override
+                        public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public ToDoItem next() {
+                            return new ToDoItem(iterator.next());
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+            };
+        }
+
+        private Snapshot withCurrentId(long id) {
+            return new Snapshot(id, toDos, byDue, byPriority);
+        }
+
+        /**
+         * Returns a Snapshot where (a copy of) the given item is added or
+         * replaces the one with the same ID, with the indexes updated
+         * accordingly.
+         */
+        private Snapshot with(ToDoItem item) {
+            ToDoItem copy = new ToDoItem(item);
+            Snapshot removed = without(item.getId());
+            PersistentSortedMap<IndexKey, ToDoItem> due = removed.byDue;
+            PersistentSortedMap<IndexKey, ToDoItem> priority =
+                    removed.byPriority;
+            if (isPending(copy)) {
+                if (copy.getDue() != null) {
+                    due = due.put(dueKey(copy), copy);
+                }
+                priority = priority.put(priorityKey(copy), copy);
+            }
+            return new Snapshot(currentId,
+                    removed.toDos.put(item.getId(), copy), due, priority);
+        }
+
+        /**
+         * Returns a Snapshot without the item with the given ID, or this
+         * Snapshot if there is no such item. The currentID is reset to 0
+         * when the list becomes empty.
+         */
+        private Snapshot without(Long id) {
+            ToDoItem item = toDos.get(id);
+            if (item == null) {
+                return this;
+            }
+            PersistentSortedMap<Long, ToDoItem> remaining = toDos.remove(id);
+            if (remaining.isEmpty()) {
+                return EMPTY;
+            }
+            PersistentSortedMap<IndexKey, ToDoItem> due = byDue;
+            PersistentSortedMap<IndexKey, ToDoItem> priority = byPriority;
+            if (isPending(item)) {
+                if (item.getDue() != null) {
+                    due = due.remove(dueKey(item));
+                }
+                priority = priority.remove(priorityKey(item));
+            }
+            return new Snapshot(currentId, remaining, due, priority);
+        }
+
+        /**
+         * Only the pending items are indexed.
+         */
+        private static boolean isPending(ToDoItem item) {
+            return !item.isCompleted();
+        }
+
+        private static IndexKey dueKey(ToDoItem item) {
+            return new IndexKey(item.getDue(), item.getId());
+        }
+
+        private static IndexKey priorityKey(ToDoItem item) {
+            // negated so that the highest priority comes first
+            return new IndexKey(-(long) item.getPriority(), item.getId());
+        }
+    }
+
+    /**
+     * The key of an index: the attribute to order by, with ties broken by
+     * the ID (that is, in the order of creation).
      */
-    private void reset() {
-        currentId = new AtomicLong();
+    private static final class IndexKey implements Comparable<IndexKey> {
+        final long order;
+        final long id;
+
+        IndexKey(long order, long id) {
+            this.order = order;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(IndexKey key) {
+            int comparison = Long.compare(order, key.order);
+            return comparison != 0 ? comparison : Long.compare(id, key.id);
+        }
     }
 }
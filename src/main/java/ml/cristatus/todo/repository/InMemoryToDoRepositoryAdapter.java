@@ -0,0 +1,95 @@
+package ml.cristatus.todo.repository;
+
+import com.google.gson.*;
+import ml.cristatus.todo.model.ToDoItem;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts an {@link InMemoryToDoRepository} to and from JSON. The format is
+ * the same one that Gson used to produce by reflection when the repository
+ * held a map of items, so old save files can still be read:
+ * <pre>
+ * {
+ *   "currentId": 2,
+ *   "toDos": {
+ *     "1": { "id": 1, "name": "...", "completed": false },
+ *     "2": { "id": 2, "name": "...", "completed": true }
+ *   }
+ * }
+ * </pre>
+ * Serialization works on a single {@link InMemoryToDoRepository.Snapshot},
+ * so the output is always consistent and writers are never paused.
+ *
+ * @author Subhomoy Haldar
+ * @version 0.3
+ */
+class InMemoryToDoRepositoryAdapter
+        implements JsonSerializer<InMemoryToDoRepository>,
+        JsonDeserializer<InMemoryToDoRepository> {
+
+    private static final String CURRENT_ID = "currentId";
+    private static final String TO_DOS = "toDos";
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public JsonElement serialize(InMemoryToDoRepository repository,
+                                 Type type,
+                                 JsonSerializationContext context) {
+        InMemoryToDoRepository.Snapshot snapshot = repository.snapshot();
+        JsonObject toDos = new JsonObject();
+        for (ToDoItem item : snapshot.getItems()) {
+            toDos.add(String.valueOf(item.getId()), context.serialize(item));
+        }
+        JsonObject object = new JsonObject();
+        object.addProperty(CURRENT_ID, snapshot.getCurrentId());
+        object.add(TO_DOS, toDos);
+        return object;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public InMemoryToDoRepository deserialize(JsonElement json,
+                                              Type type,
+                                              JsonDeserializationContext context)
+            throws JsonParseException {
+        if (!json.isJsonObject()) {
+            throw new JsonParseException("Expected an object: " + json);
+        }
+        JsonObject object = json.getAsJsonObject();
+        try {
+            long currentId = object.has(CURRENT_ID)
+                    ? object.get(CURRENT_ID).getAsLong() : 0;
+            List<ToDoItem> items = new ArrayList<>();
+            if (object.has(TO_DOS)) {
+                for (Map.Entry<String, JsonElement> entry
+                        : object.getAsJsonObject(TO_DOS).entrySet()) {
+                    ToDoItem item = context.deserialize(entry.getValue(),
+                            ToDoItem.class);
+                    if (item == null || item.getName() == null) {
+                        throw new JsonParseException(
+                                "Invalid item: " + entry.getValue());
+                    }
+                    items.add(item);
+                    currentId = Math.max(currentId, item.getId());
+                }
+            }
+            return new InMemoryToDoRepository(currentId, items);
+        } catch (IllegalStateException | ClassCastException
+                | UnsupportedOperationException | NumberFormatException e) {
+            // thrown by the JsonElement accessors for unexpected types
+            throw new JsonParseException(e);
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package ml.cristatus.todo.repository;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable, sorted map that is backed by a persistent AVL tree. Every
+ * "modification" returns a new map that shares all the untouched nodes with
+ * the old one (path copying), so the old map remains valid and unchanged.
+ * <p>
+ * This makes it possible to hand out a snapshot of a repository in O(1) time
+ * (just the reference to the map) and let readers iterate over it without
+ * copying or locking, while writers keep on publishing newer versions.
+ *
+ * @param <K> The type of the keys, which decide the order.
+ * @param <V> The type of the values.
+ * @author Subhomoy Haldar
+ * @version 0.3
+ */
+final class PersistentSortedMap<K extends Comparable<? super K>, V> {
+
+    /**
+     * The one and only empty map. It is safe to share since it is immutable.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final PersistentSortedMap EMPTY =
+            new PersistentSortedMap(null);
+
+    /**
+     * The root of the tree, <code>null</code> if the map is empty.
+     */
+    private final Node<K, V> root;
+
+    private PersistentSortedMap(Node<K, V> root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns the empty map.
+     *
+     * @param <K> The type of the keys.
+     * @param <V> The type of the values.
+     * @return The empty map.
+     */
+    @SuppressWarnings("unchecked")
+    static <K extends Comparable<? super K>, V> PersistentSortedMap<K, V> empty() {
+        return (PersistentSortedMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Returns the number of mappings in this map in O(1) time.
+     *
+     * @return The number of mappings in this map.
+     */
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * Returns <code>true</code> if this map has no mappings.
+     *
+     * @return <code>true</code> if this map has no mappings.
+     */
+    boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Returns the value associated with the given key, or <code>null</code>
+     * if there is no such mapping.
+     *
+     * @param key The key to look for.
+     * @return The associated value or <code>null</code>.
+     */
+    V get(K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int comparison = key.compareTo(node.key);
+            if (comparison == 0) {
+                return node.value;
+            }
+            node = comparison < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Returns a map that contains all the mappings of this map, along with
+     * the given one (which replaces an existing mapping for the same key).
+     *
+     * @param key   The key.
+     * @param value The value to associate with the key.
+     * @return The new map. This map is left untouched.
+     */
+    PersistentSortedMap<K, V> put(K key, V value) {
+        Node<K, V> newRoot = put(root, key, value);
+        return newRoot == root ? this : new PersistentSortedMap<>(newRoot);
+    }
+
+    /**
+     * Returns a map that contains all the mappings of this map, except the
+     * one for the given key.
+     *
+     * @param key The key to remove.
+     * @return The new map. This map is left untouched.
+     */
+    PersistentSortedMap<K, V> remove(K key) {
+        Node<K, V> newRoot = remove(root, key);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? PersistentSortedMap.<K, V>empty()
+                : new PersistentSortedMap<>(newRoot);
+    }
+
+    /**
+     * Returns an unmodifiable view of the values in ascending order of their
+     * keys. No copy is made: the view reads straight from the (immutable)
+     * tree, so it will never change, no matter what happens to the maps
+     * derived from this one. Iteration is O(n) and indexing is O(log n).
+     *
+     * @return An unmodifiable, sorted view of the values.
+     */
+    List<V> values() {
+        return new AbstractList<V>() {
+            @Override
+            public V get(int index) {
+                if (index < 0 || index >= size()) {
+                    throw new IndexOutOfBoundsException("Index: " + index);
+                }
+                Node<K, V> node = root;
+                while (true) {
+                    int leftSize = PersistentSortedMap.size(node.left);
+                    if (index == leftSize) {
+                        return node.value;
+                    }
+                    if (index < leftSize) {
+                        node = node.left;
+                    } else {
+                        index -= leftSize + 1;
+                        node = node.right;
+                    }
+                }
+            }
+
+            @Override
+            public int size() {
+                return PersistentSortedMap.this.size();
+            }
+
+            @Override
+            public Iterator<V> iterator() {
+                return new InOrderIterator<>(root);
+            }
+        };
+    }
+
+    /**
+     * Returns the values of the first (at most) <code>count</code> mappings,
+     * in ascending order of their keys. This takes O(log n + count) time.
+     *
+     * @param count The maximum number of values to return.
+     * @return A new list containing the values.
+     */
+    List<V> firstValues(int count) {
+        List<V> values = new ArrayList<>(Math.max(0, Math.min(count, size())));
+        Iterator<V> iterator = new InOrderIterator<>(root);
+        while (values.size() < count && iterator.hasNext()) {
+            values.add(iterator.next());
+        }
+        return values;
+    }
+
+    /**
+     * Returns the values of all the mappings whose keys are strictly less
+     * than the given key, in ascending order of their keys. This takes
+     * O(log n + k) time, where k is the number of values returned.
+     *
+     * @param key The (exclusive) upper bound of the keys.
+     * @return A new list containing the values.
+     */
+    List<V> valuesBefore(K key) {
+        List<V> values = new ArrayList<>();
+        collectBefore(root, key, values);
+        return values;
+    }
+
+    private static <K extends Comparable<? super K>, V> void collectBefore(
+            Node<K, V> node, K key, List<V> values) {
+        while (node != null) {
+            if (node.key.compareTo(key) >= 0) {
+                node = node.left;
+                continue;
+            }
+            // the whole left subtree and this node come before the key
+            collectBefore(node.left, key, values);
+            values.add(node.value);
+            node = node.right;
+        }
+    }
+
+    private static int size(Node<?, ?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int height(Node<?, ?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static <K extends Comparable<? super K>, V> Node<K, V> put(
+            Node<K, V> node, K key, V value) {
+        if (node == null) {
+            return new Node<>(key, value, null, null);
+        }
+        int comparison = key.compareTo(node.key);
+        if (comparison == 0) {
+            return node.value == value ? node
+                    : new Node<>(key, value, node.left, node.right);
+        }
+        if (comparison < 0) {
+            return balance(node.key, node.value,
+                    put(node.left, key, value), node.right);
+        }
+        return balance(node.key, node.value,
+                node.left, put(node.right, key, value));
+    }
+
+    private static <K extends Comparable<? super K>, V> Node<K, V> remove(
+            Node<K, V> node, K key) {
+        if (node == null) {
+            return null;
+        }
+        int comparison = key.compareTo(node.key);
+        if (comparison < 0) {
+            Node<K, V> left = remove(node.left, key);
+            return left == node.left ? node
+                    : balance(node.key, node.value, left, node.right);
+        }
+        if (comparison > 0) {
+            Node<K, V> right = remove(node.right, key);
+            return right == node.right ? node
+                    : balance(node.key, node.value, node.left, right);
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        Node<K, V> successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.key, successor.value,
+                node.left, removeMin(node.right));
+    }
+
+    private static <K, V> Node<K, V> removeMin(Node<K, V> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.key, node.value, removeMin(node.left), node.right);
+    }
+
+    /**
+     * Creates a new node with the given contents, performing the AVL
+     * rotations if the heights of the subtrees differ by more than one.
+     */
+    private static <K, V> Node<K, V> balance(K key, V value,
+                                             Node<K, V> left,
+                                             Node<K, V> right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.key, left.value, left.left,
+                        new Node<>(key, value, left.right, right));
+            }
+            Node<K, V> pivot = left.right;
+            return new Node<>(pivot.key, pivot.value,
+                    new Node<>(left.key, left.value, left.left, pivot.left),
+                    new Node<>(key, value, pivot.right, right));
+        }
+        if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.key, right.value,
+                        new Node<>(key, value, left, right.left),
+                        right.right);
+            }
+            Node<K, V> pivot = right.left;
+            return new Node<>(pivot.key, pivot.value,
+                    new Node<>(key, value, left, pivot.left),
+                    new Node<>(right.key, right.value, pivot.right, right.right));
+        }
+        return new Node<>(key, value, left, right);
+    }
+
+    /**
+     * An immutable node of the tree. It caches its height (for balancing)
+     * and the size of its subtree (for indexing).
+     */
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final Node<K, V> left;
+        final Node<K, V> right;
+        final int height;
+        final int size;
+
+        Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + 1;
+        }
+    }
+
+    /**
+     * Walks the tree in order using an explicit stack of at most O(log n)
+     * nodes.
+     */
+    private static final class InOrderIterator<K, V> implements Iterator<V> {
+        private final Deque<Node<K, V>> stack = new ArrayDeque<>();
+
+        InOrderIterator(Node<K, V> root) {
+            pushLeft(root);
+        }
+
+        private void pushLeft(Node<K, V> node) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public V next() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node<K, V> node = stack.pop();
+            pushLeft(node.right);
+            return node.value;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -31,6 +31,34 @@ public interface ToDoRepository {
      */
     ToDoItem findById(Long id);
 
+    /**
+     * Returns (at most) the given number of pending (not completed)
+     * {@link ToDoItem}s that have a due time, in the order that they are due.
+     *
+     * @param count The maximum number of items to return.
+     * @return The pending items that are due next.
+     */
+    List<ToDoItem> findNextDue(int count);
+
+    /**
+     * Returns the pending (not completed) {@link ToDoItem}s that were due
+     * before the given time, in the order that they were due.
+     *
+     * @param time The current time, in milliseconds since the epoch.
+     * @return The pending items that are overdue.
+     */
+    List<ToDoItem> findOverdue(long time);
+
+    /**
+     * Returns (at most) the given number of pending (not completed)
+     * {@link ToDoItem}s with the highest priorities, most important first.
+     * Items with the same priority are in the order that they were added.
+     *
+     * @param count The maximum number of items to return.
+     * @return The pending items with the highest priorities.
+     */
+    List<ToDoItem> findTopPriority(int count);
+
     /**
      * Inserts a new ToDoItem into the repository that has the content given
      * in the argument and returns the ID assigned to it.
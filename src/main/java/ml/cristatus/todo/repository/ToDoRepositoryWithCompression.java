@@ -0,0 +1,229 @@
+package ml.cristatus.todo.repository;
+
+import ml.cristatus.todo.model.ToDoItem;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * This implementation provides a compact save mechanism. It looks for a
+ * <code>toDoData.dat</code> file in the <code>Documents</code> folder (or
+ * creates one if it can't find one). Then it saves the data in a compressed
+ * binary format.
+ * <p>
+ * Task names tend to repeat a lot, so every distinct name is stored only
+ * once, in a dictionary, and the items refer to it by index. The whole
+ * thing is then compressed with Deflate. The format is:
+ * <pre>
+ * int     magic number
+ * -- everything below is compressed --
+ * long    currentId
+ * int     number of names, followed by the names
+ * int     number of items, followed by the items:
+ *         int name index, long id, byte flags, [long due], int priority
+ * </pre>
+ * Strings are written as an int length followed by their UTF-8 bytes. The
+ * data is decoded while it is being decompressed, so it is never held in
+ * memory as a whole.
+ *
+ * @author Subhomoy Haldar
+ * @version 0.3
+ */
+public class ToDoRepositoryWithCompression extends ToDoRepositoryWithFile {
+
+    /**
+     * This is the default save location, which is expected to be same
+     * throughout all platforms (hopefully).
+     */
+    private static final File DEFAULT_FILE = new File(
+            System.getProperty("user.home") + "/Documents/toDoData.dat"
+    );
+    /**
+     * Identifies the format (and its version) of the file: "TDO1".
+     */
+    private static final int MAGIC = 0x54444F31;
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+    private static final int COMPLETED = 1;
+    private static final int HAS_DUE = 2;
+
+    /**
+     * Creates a new repository by loading saved data, if available. If there
+     * is no compressed file yet, but there is a JSON file saved by
+     * {@link ToDoRepositoryWithJSON}, its tasks are imported.
+     */
+    public ToDoRepositoryWithCompression() {
+        this(DEFAULT_FILE, ToDoRepositoryWithJSON.DEFAULT_FILE);
+    }
+
+    /**
+     * Creates a new repository by loading saved data from the given file,
+     * if available. Otherwise, the tasks are imported from the given JSON
+     * file, if available.
+     *
+     * @param file     The file to load from and save to.
+     * @param jsonFile The JSON file to import from.
+     */
+    ToDoRepositoryWithCompression(File file, File jsonFile) {
+        this(file);
+        if (!file.exists() && jsonFile.exists()) {
+            importFrom(new ToDoRepositoryWithJSON(jsonFile));
+        }
+    }
+
+    /**
+     * Creates a new repository by loading saved data from the given file,
+     * if available.
+     *
+     * @param file The file to load from and save to.
+     */
+    public ToDoRepositoryWithCompression(File file) {
+        super(file);
+    }
+
+    /**
+     * Decompresses and decodes the data in the stream straight into a
+     * repository.
+     *
+     * @param in The stream to read from.
+     * @return {@inheritDoc}
+     * @throws IOException {@inheritDoc}
+     */
+    @Override
+    protected InMemoryToDoRepository read(InputStream in) throws IOException {
+        if (new DataInputStream(in).readInt() != MAGIC) {
+            throw new IOException("Not a compressed ToDo file.");
+        }
+        Inflater inflater = new Inflater();
+        try {
+            DataInputStream data = new DataInputStream(new BufferedInputStream(
+                    new InflaterInputStream(in, inflater)
+            ));
+            long currentId = data.readLong();
+            // the lists grow as they are read, so that a corrupt count
+            // results in an EOFException and not in a huge allocation
+            int nameCount = readCount(data);
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < nameCount; i++) {
+                names.add(readString(data));
+            }
+            int count = readCount(data);
+            List<ToDoItem> items = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                int index = data.readInt();
+                if (index < 0 || index >= names.size()) {
+                    throw new IOException("Invalid name index: " + index);
+                }
+                ToDoItem item = new ToDoItem(names.get(index),
+                        data.readLong());
+                int flags = data.readByte();
+                if ((flags & ~(COMPLETED | HAS_DUE)) != 0) {
+                    throw new IOException("Invalid flags: " + flags);
+                }
+                item.setCompleted((flags & COMPLETED) != 0);
+                if ((flags & HAS_DUE) != 0) {
+                    item.setDue(data.readLong());
+                }
+                item.setPriority(data.readInt());
+                items.add(item);
+                currentId = Math.max(currentId, item.getId());
+            }
+            return new InMemoryToDoRepository(currentId, items);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Encodes and compresses a snapshot of the repository.
+     *
+     * @param repository The repository to write.
+     * @param out        The stream to write to.
+     * @throws IOException {@inheritDoc}
+     */
+    @Override
+    protected void write(InMemoryToDoRepository repository,
+                         OutputStream out) throws IOException {
+        InMemoryToDoRepository.Snapshot snapshot = repository.snapshot();
+        List<ToDoItem> items = snapshot.getItems();
+
+        // the snapshot cannot change, so it can be walked twice: once to
+        // build the dictionary, and once to write the items
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        for (ToDoItem item : items) {
+            String name = item.getName();
+            if (!dictionary.containsKey(name)) {
+                dictionary.put(name, names.size());
+                names.add(name);
+            }
+        }
+
+        new DataOutputStream(out).writeInt(MAGIC);
+        Deflater deflater = new Deflater();
+        try {
+            DeflaterOutputStream compressed =
+                    new DeflaterOutputStream(out, deflater);
+            DataOutputStream data = new DataOutputStream(
+                    new BufferedOutputStream(compressed));
+            data.writeLong(snapshot.getCurrentId());
+            data.writeInt(names.size());
+            for (String name : names) {
+                writeString(data, name);
+            }
+            data.writeInt(items.size());
+            for (ToDoItem item : items) {
+                Long due = item.getDue();
+                data.writeInt(dictionary.get(item.getName()));
+                data.writeLong(item.getId());
+                data.writeByte((item.isCompleted() ? COMPLETED : 0)
+                        | (due != null ? HAS_DUE : 0));
+                if (due != null) {
+                    data.writeLong(due);
+                }
+                data.writeInt(item.getPriority());
+            }
+            data.flush();
+            compressed.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid count: " + count);
+        }
+        return count;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readCount(in);
+        // read in chunks, for the same reason as the lists
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[Math.min(length, 8192)];
+        while (length > 0) {
+            int chunk = Math.min(length, buffer.length);
+            in.readFully(buffer, 0, chunk);
+            bytes.write(buffer, 0, chunk);
+            length -= chunk;
+        }
+        return new String(bytes.toByteArray(), CHARSET);
+    }
+
+    private static void writeString(DataOutputStream out, String string)
+            throws IOException {
+        byte[] bytes = string.getBytes(CHARSET);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,280 @@
+package ml.cristatus.todo.repository;
+
+import ml.cristatus.todo.model.ToDoItem;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * This is the base for the implementations that provide a save mechanism
+ * backed by a single file. The subclasses only decide the format of the
+ * file, by implementing {@link #read(InputStream) read()} and
+ * {@link #write(InMemoryToDoRepository, OutputStream) write()}.
+ * <p>
+ * It uses an instance of {@link InMemoryToDoRepository} internally inorder
+ * to reuse existing functionality.
+ *
+ * @author Subhomoy Haldar
+ * @version 0.3
+ */
+public abstract class ToDoRepositoryWithFile implements ToDoRepository {
+
+    /**
+     * If a terminal session extends for too long and some problem occurs at
+     * the end, then a lot of data might be lost. Therefore, this class
+     * auto saves after a regular period (number of operations).
+     */
+    private static final int AUTO_SAVE_COUNT = 15;
+
+    /**
+     * The file to load from and save to.
+     */
+    private final File file;
+    /**
+     * This class basically wraps around this repository.
+     */
+    private InMemoryToDoRepository internalRepository;
+    /**
+     * Operation count. Necessary for autoSave().
+     */
+    private int operationCount;
+
+    /**
+     * Creates a new repository by loading saved data from the given file, if
+     * available. A new, empty repository is started if the file is missing
+     * or has no data.
+     * <p>
+     * If the file cannot be read, it is moved aside (to a <code>.bak</code>
+     * file next to it) before an empty repository is started, so that the
+     * saved data is never overwritten.
+     *
+     * @param file The file to load from and save to.
+     * @throws IllegalStateException If the file cannot be read, and it
+     *                               cannot be moved aside either.
+     */
+    protected ToDoRepositoryWithFile(File file) {
+        this.file = file;
+        internalRepository = null;
+        if (file.exists() && file.length() > 0) {
+            try (InputStream in = new BufferedInputStream(
+                    new FileInputStream(file)
+            )) {
+                internalRepository = read(in);
+            } catch (IOException e) {
+                moveAside(file, e);
+            }
+        }
+        if (internalRepository == null) {
+            internalRepository = new InMemoryToDoRepository();
+        }
+        operationCount = 0;
+    }
+
+    /**
+     * Renames the given (unreadable) file to the first free name among
+     * <code>file.bak</code>, <code>file.bak1</code>, <code>file.bak2</code>
+     * and so on.
+     *
+     * @param file  The file to move aside.
+     * @param cause The reason why the file could not be read.
+     */
+    private static void moveAside(File file, IOException cause) {
+        String reason = "Could not read " + file
+                + " (" + cause.getMessage() + ").";
+        File backup = new File(file.getPath() + ".bak");
+        for (int i = 1; backup.exists(); i++) {
+            backup = new File(file.getPath() + ".bak" + i);
+        }
+        if (!file.renameTo(backup)) {
+            throw new IllegalStateException(reason
+                    + " It could not be moved aside either.", cause);
+        }
+        System.err.println(reason + " It was moved to " + backup
+                + " and a new list was started.");
+    }
+
+    /**
+     * Reads a repository from the given stream, which contains the whole
+     * file. This is called from the constructor, so it must not depend on
+     * the state of the subclass.
+     *
+     * @param in The stream to read from.
+     * @return The repository that was read, or <code>null</code> if the file
+     * holds no data (in which case it is left as it is).
+     * @throws IOException If the data could not be read or is malformed.
+     */
+    protected abstract InMemoryToDoRepository read(InputStream in)
+            throws IOException;
+
+    /**
+     * Writes a snapshot of the given repository to the given stream.
+     *
+     * @param repository The repository to write.
+     * @param out        The stream to write to.
+     * @throws IOException If the data could not be written.
+     */
+    protected abstract void write(InMemoryToDoRepository repository,
+                                  OutputStream out) throws IOException;
+
+    /**
+     * Replaces the contents of this repository with (a snapshot of) the
+     * contents of the given one, and saves them. This is used to carry the
+     * tasks over from another format.
+     *
+     * @param other The repository to import from.
+     */
+    protected void importFrom(ToDoRepositoryWithFile other) {
+        InMemoryToDoRepository.Snapshot snapshot =
+                other.internalRepository.snapshot();
+        internalRepository = new InMemoryToDoRepository(
+                snapshot.getCurrentId(), snapshot.getItems());
+        save();
+        System.err.println("Imported " + snapshot.getItems().size()
+                + " tasks from " + other.file + " into " + file + ".");
+    }
+
+    /**
+     * Writes the contents of the internalRepository to the file. Only a
+     * snapshot of the repository is written, so this can be called while it
+     * is being modified.
+     * <p>
+     * The data is first written to a temporary file next to the real one,
+     * which is then moved over it. So if anything goes wrong while writing,
+     * the previously saved data is left intact.
+     */
+    @Override
+    public void save() {
+        File directory = file.getAbsoluteFile().getParentFile();
+        File temporary = null;
+        try {
+            temporary = File.createTempFile(file.getName(), ".tmp", directory);
+            try (OutputStream out = new BufferedOutputStream(
+                    new FileOutputStream(temporary)
+            )) {
+                write(internalRepository, out);
+            }
+            replace(temporary.toPath(), file.toPath());
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (temporary != null && temporary.exists() && !temporary.delete()) {
+                temporary.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Moves the source file over the target, atomically if the file system
+     * supports it.
+     */
+    private static void replace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public List<ToDoItem> findAll() {
+        autoSave();
+        return internalRepository.findAll();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public ToDoItem findById(Long id) {
+        autoSave();
+        return internalRepository.findById(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public List<ToDoItem> findNextDue(int count) {
+        autoSave();
+        return internalRepository.findNextDue(count);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public List<ToDoItem> findOverdue(long time) {
+        autoSave();
+        return internalRepository.findOverdue(time);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public List<ToDoItem> findTopPriority(int count) {
+        autoSave();
+        return internalRepository.findTopPriority(count);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public Long insert(String text) {
+        autoSave();
+        return internalRepository.insert(text);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public void update(ToDoItem toDoItem) {
+        autoSave();
+        internalRepository.update(toDoItem);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public void delete(ToDoItem toDoItem) {
+        autoSave();
+        internalRepository.delete(toDoItem);
+    }
+
+    /**
+     * Automatically saves progress after a certain number of operations.
+     */
+    private void autoSave() {
+        operationCount++;
+        if (operationCount % AUTO_SAVE_COUNT == 0) {
+            save();
+        }
+    }
+}
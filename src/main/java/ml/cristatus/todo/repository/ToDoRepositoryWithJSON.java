@@ -2,161 +2,88 @@ package ml.cristatus.todo.repository;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import ml.cristatus.todo.model.ToDoItem;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
 
 import java.io.*;
-import java.util.List;
-import java.util.Scanner;
 
 /**
  * This implementation provides a save mechanism. It looks for a
  * <code>toDoData.json</code> file in the <code>Documents</code> folder (or
  * creates one if it can't find one). Then it saves the data in JSON format.
- * <p>
- * It uses an instance of {@link InMemoryToDoRepository} internally inorder
- * to reuse existing functionality.
  *
  * @author Subhomoy Haldar
  * @version 0.3
  */
-public class ToDoRepositoryWithJSON implements ToDoRepository {
+public class ToDoRepositoryWithJSON extends ToDoRepositoryWithFile {
 
     /**
      * This is the default save location, which is expected to be same
      * throughout all platforms (hopefully).
      */
-    private static final File DEFAULT_FILE = new File(
+    static final File DEFAULT_FILE = new File(
             System.getProperty("user.home") + "/Documents/toDoData.json"
     );
     /**
      * The Gson instance used every time to provide conversion functionality
      * between JSON and Java representation.
      */
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
-    /**
-     * If a terminal session extends for too long and some problem occurs at
-     * the end, then a lot of data might be lost. Therefore, this class
-     * auto saves after a regular period (number of operations).
-     */
-    private static final int AUTO_SAVE_COUNT = 15;
-
-    /**
-     * This class basically wraps around this repository.
-     */
-    private InMemoryToDoRepository internalRepository;
-    /**
-     * Operation count. Necessary for autoSave().
-     */
-    private int operationCount;
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(InMemoryToDoRepository.class,
+                    new InMemoryToDoRepositoryAdapter())
+            .setPrettyPrinting()
+            .create();
 
     /**
      * Creates a new repository by loading saved data, if available.
      */
     public ToDoRepositoryWithJSON() {
-        if (DEFAULT_FILE.exists()) {
-            String data = getDataFrom(DEFAULT_FILE);
-            internalRepository =
-                    GSON.fromJson(data, InMemoryToDoRepository.class);
-        } else {
-            internalRepository = new InMemoryToDoRepository();
-        }
-        operationCount = 0;
+        this(DEFAULT_FILE);
     }
 
     /**
-     * Reads in all the data from the given file (which MUST exist) and
-     * returns it in the form of a String.
+     * Creates a new repository by loading saved data from the given file,
+     * if available.
      *
-     * @param file The File to read.
-     * @return A String containing all the data in the File.
+     * @param file The file to load from and save to.
      */
-    private static String getDataFrom(File file) {
-        try {
-            Scanner scanner = new Scanner(file);
-            scanner.useDelimiter("\\A");    // read everything
-            return scanner.next();
-        } catch (FileNotFoundException e) {
-            // ignore because file must exist
-        }
-        return "";
-    }
-
-    /**
-     * Writes the contents of the internalRepository to the default file.
-     */
-    @Override
-    public void save() {
-        try (BufferedWriter writer = new BufferedWriter(
-                new FileWriter(DEFAULT_FILE, false) // overwrite the file
-        )) {
-            writer.write(GSON.toJson(internalRepository));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
-    /**
-     * {@inheritDoc}
-     *
-     * @return {@inheritDoc}
-     */
-    @Override
-    public List<ToDoItem> findAll() {
-        autoSave();
-        return internalRepository.findAll();
+    public ToDoRepositoryWithJSON(File file) {
+        super(file);
     }
 
     /**
-     * {@inheritDoc}
+     * Parses the JSON data in the stream straight into a repository.
      *
+     * @param in The stream to read from.
      * @return {@inheritDoc}
+     * @throws IOException {@inheritDoc}
      */
     @Override
-    public ToDoItem findById(Long id) {
-        autoSave();
-        return internalRepository.findById(id);
-    }
-
-    /**
-     * {@inheritDoc}
-     *
-     * @return {@inheritDoc}
-     */
-    @Override
-    public Long insert(String text) {
-        autoSave();
-        return internalRepository.insert(text);
-    }
-
-    /**
-     * {@inheritDoc}
-     *
-     * @return {@inheritDoc}
-     */
-    @Override
-    public void update(ToDoItem toDoItem) {
-        autoSave();
-        internalRepository.update(toDoItem);
+    protected InMemoryToDoRepository read(InputStream in) throws IOException {
+        try {
+            return GSON.fromJson(new InputStreamReader(in),
+                    InMemoryToDoRepository.class);
+        } catch (JsonParseException e) {
+            throw new IOException(e);
+        }
     }
 
     /**
-     * {@inheritDoc}
+     * Writes the repository as pretty-printed JSON.
      *
-     * @return {@inheritDoc}
+     * @param repository The repository to write.
+     * @param out        The stream to write to.
+     * @throws IOException {@inheritDoc}
      */
     @Override
-    public void delete(ToDoItem toDoItem) {
-        autoSave();
-        internalRepository.delete(toDoItem);
-    }
-
-    /**
-     * Automatically saves progress after a certain number of operations.
-     */
-    private void autoSave() {
-        operationCount++;
-        if (operationCount % AUTO_SAVE_COUNT == 0) {
-            save();
+    protected void write(InMemoryToDoRepository repository,
+                         OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out);
+        try {
+            GSON.toJson(repository, InMemoryToDoRepository.class, writer);
+        } catch (JsonIOException e) {
+            throw new IOException(e);
         }
+        writer.flush();
     }
 }
@@ -0,0 +1,69 @@
+package ml.cristatus.todo.repository;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import ml.cristatus.todo.model.ToDoItem;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link InMemoryToDoRepositoryAdapter}.
+ *
+ * @author Subhomoy Haldar
+ * @version 0.3
+ */
+public class InMemoryToDoRepositoryAdapterTest {
+
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(InMemoryToDoRepository.class,
+                    new InMemoryToDoRepositoryAdapter())
+            .create();
+
+    @Test
+    public void readsTheFormatSavedByOlderVersions() {
+        InMemoryToDoRepository repository = GSON.fromJson("{\n" +
+                "  \"currentId\": 3,\n" +
+                "  \"toDos\": {\n" +
+                "    \"1\": {\"id\": 1, \"name\": \"first\", \"completed\": true},\n" +
+                "    \"3\": {\"id\": 3, \"name\": \"third\", \"completed\": false}\n" +
+                "  }\n" +
+                "}", InMemoryToDoRepository.class);
+
+        List<ToDoItem> items = repository.findAll();
+        assertEquals(2, items.size());
+        assertEquals("first", items.get(0).getName());
+        assertTrue(items.get(0).isCompleted());
+        assertEquals(Long.valueOf(3), items.get(1).getId());
+        assertFalse(items.get(1).isCompleted());
+        assertEquals(Long.valueOf(4), repository.insert("fourth"));
+    }
+
+    @Test
+    public void writesWhatItReads() {
+        InMemoryToDoRepository repository = new InMemoryToDoRepository();
+        repository.insert("first");
+        ToDoItem item = repository.findById(repository.insert("second"));
+        item.setCompleted(true);
+        repository.update(item);
+        repository.delete(repository.findById(1L));
+
+        InMemoryToDoRepository read = GSON.fromJson(GSON.toJson(repository),
+                InMemoryToDoRepository.class);
+        assertEquals(1, read.findAll().size());
+        assertEquals("second", read.findById(2L).getName());
+        assertTrue(read.findById(2L).isCompleted());
+        assertEquals(2, read.snapshot().getCurrentId());
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void rejectsUnexpectedJson() {
+        GSON.fromJson("[\"not\", \"a\", \"repository\"]",
+                InMemoryToDoRepository.class);
+    }
+}
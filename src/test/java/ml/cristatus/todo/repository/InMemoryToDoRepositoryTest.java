@@ -0,0 +1,85 @@
+package ml.cristatus.todo.repository;
+
+import ml.cristatus.todo.model.ToDoItem;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link InMemoryToDoRepository}.
+ *
+ * @author Subhomoy Haldar
+ * @version 0.3
+ */
+public class InMemoryToDoRepositoryTest {
+
+    @Test
+    public void snapshotsAreNotAffectedByChangesToReturnedItems() {
+        InMemoryToDoRepository repository = new InMemoryToDoRepository();
+        repository.insert("first");
+        List<ToDoItem> before = repository.findAll();
+
+        ToDoItem item = repository.findById(1L);
+        item.setName("changed");
+        before.get(0).setCompleted(true);
+        assertEquals("first", before.get(0).getName());
+        assertEquals("first", repository.findById(1L).getName());
+
+        repository.update(item);
+        assertEquals("first", before.get(0).getName());
+        assertEquals("changed", repository.findById(1L).getName());
+    }
+
+    @Test
+    public void indexesFollowUpdatesOfPendingItems() {
+        InMemoryToDoRepository repository = new InMemoryToDoRepository();
+        for (String name : Arrays.asList("a", "b", "c", "d")) {
+            repository.insert(name);
+        }
+        schedule(repository, 1L, 300L, 1);
+        schedule(repository, 2L, 100L, 5);
+        schedule(repository, 3L, 200L, 5);
+
+        assertEquals(Arrays.asList(2L, 3L), ids(repository.findNextDue(2)));
+        assertEquals(Arrays.asList(2L, 3L), ids(repository.findOverdue(300L)));
+        assertEquals(Arrays.asList(2L, 3L, 1L, 4L),
+                ids(repository.findTopPriority(10)));
+
+        // a due time that is changed but not updated is not visible
+        repository.findById(1L).setDue(0L);
+        assertEquals(Arrays.asList(2L), ids(repository.findNextDue(1)));
+
+        ToDoItem item = repository.findById(2L);
+        item.setCompleted(true);
+        repository.update(item);
+        schedule(repository, 1L, 50L, 0);
+        assertEquals(Arrays.asList(1L, 3L), ids(repository.findNextDue(5)));
+        assertEquals(Arrays.asList(3L, 1L, 4L),
+                ids(repository.findTopPriority(10)));
+
+        repository.delete(repository.findById(3L));
+        assertEquals(Arrays.asList(1L), ids(repository.findOverdue(1000L)));
+        assertTrue(repository.findOverdue(50L).isEmpty());
+    }
+
+    private static void schedule(ToDoRepository repository, Long id,
+                                 long due, int priority) {
+        ToDoItem item = repository.findById(id);
+        item.setDue(due);
+        item.setPriority(priority);
+        repository.update(item);
+    }
+
+    private static List<Long> ids(List<ToDoItem> items) {
+        List<Long> ids = new ArrayList<>();
+        for (ToDoItem item : items) {
+            ids.add(item.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,95 @@
+package ml.cristatus.todo.repository;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link PersistentSortedMap}.
+ *
+ * @author Subhomoy Haldar
+ * @version 0.3
+ */
+public class PersistentSortedMapTest {
+
+    @Test
+    public void matchesTreeMapUnderRandomPutsAndRemoves() {
+        Random random = new Random(42);
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        PersistentSortedMap<Integer, String> actual =
+                PersistentSortedMap.empty();
+        for (int i = 0; i < 20000; i++) {
+            Integer key = random.nextInt(1000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                actual = actual.remove(key);
+            } else {
+                expected.put(key, "v" + i);
+                actual = actual.put(key, "v" + i);
+            }
+            assertEquals(expected.size(), actual.size());
+            assertEquals(expected.get(key), actual.get(key));
+        }
+        List<String> values = actual.values();
+        assertEquals(new ArrayList<>(expected.values()), values);
+        int index = 0;
+        for (String value : expected.values()) {
+            assertEquals(value, values.get(index++));
+        }
+    }
+
+    @Test
+    public void leavesOlderVersionsUntouched() {
+        PersistentSortedMap<Integer, String> empty = PersistentSortedMap.empty();
+        PersistentSortedMap<Integer, String> first =
+                empty.put(2, "b").put(1, "a").put(3, "c");
+        PersistentSortedMap<Integer, String> second =
+                first.remove(2).put(1, "A").put(4, "d");
+
+        assertTrue(empty.isEmpty());
+        assertEquals(Arrays.asList("a", "b", "c"), first.values());
+        assertEquals(Arrays.asList("A", "c", "d"), second.values());
+    }
+
+    @Test
+    public void returnsTheSameMapWhenNothingChanges() {
+        String value = "a";
+        PersistentSortedMap<Integer, String> map =
+                PersistentSortedMap.<Integer, String>empty().put(1, value);
+
+        assertSame(map, map.put(1, value));
+        assertSame(map, map.remove(2));
+        assertSame(PersistentSortedMap.empty(), map.remove(1));
+        assertNull(map.get(2));
+    }
+
+    @Test
+    public void firstValuesAndValuesBeforeAreSortedPrefixes() {
+        PersistentSortedMap<Integer, Integer> map = PersistentSortedMap.empty();
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            keys.add(i * 2);
+        }
+        Collections.shuffle(keys, new Random(7));
+        for (Integer key : keys) {
+            map = map.put(key, key);
+        }
+        Collections.sort(keys);
+
+        assertEquals(keys.subList(0, 5), map.firstValues(5));
+        assertEquals(keys, map.firstValues(1000));
+        assertEquals(keys.subList(0, 21), map.valuesBefore(41));
+        assertEquals(keys.subList(0, 20), map.valuesBefore(40));
+        assertTrue(map.valuesBefore(0).isEmpty());
+    }
+}
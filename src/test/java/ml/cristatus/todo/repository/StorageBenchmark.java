@@ -0,0 +1,125 @@
+package ml.cristatus.todo.repository;
+
+import ml.cristatus.todo.model.ToDoItem;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the size and the speed of the JSON and the compressed formats on
+ * a repository full of templated task names. Run it with
+ * <code>gradle benchmark</code>, optionally setting the number of items with
+ * <code>-Pitems=&lt;count&gt;</code>.
+ *
+ * @author Subhomoy Haldar
+ * @version 0.3
+ */
+public class StorageBenchmark {
+
+    private static final String[] TEMPLATES = {
+            "Review pull request",
+            "Update dependencies",
+            "Write release notes",
+            "Triage incoming bug reports",
+            "Follow up with the QA team",
+            "Prepare the weekly status report",
+            "Fix flaky integration test",
+            "Deploy to staging",
+    };
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        InMemoryToDoRepository repository = populate(count);
+        File missing = new File("does-not-exist");
+        System.out.println("Items: " + count + ", rounds: " + ROUNDS);
+        System.out.printf("%-16s %12s %12s %12s%n",
+                "Format", "Bytes", "Write (ms)", "Read (ms)");
+        measure("JSON (pretty)", new ToDoRepositoryWithJSON(missing),
+                repository);
+        measure("Compressed", new ToDoRepositoryWithCompression(missing),
+                repository);
+    }
+
+    /**
+     * Creates a repository with the given number of items. Most names are
+     * taken as-is from the templates, the rest carry a ticket number.
+     */
+    private static InMemoryToDoRepository populate(int count) {
+        Random random = new Random(42);
+        InMemoryToDoRepository repository = new InMemoryToDoRepository();
+        for (int i = 0; i < count; i++) {
+            String name = TEMPLATES[random.nextInt(TEMPLATES.length)];
+            if (random.nextInt(4) == 0) {
+                name += " #" + random.nextInt(1000);
+            }
+            ToDoItem item = repository.findById(repository.insert(name));
+            item.setCompleted(random.nextBoolean());
+            if (random.nextBoolean()) {
+                item.setDue(1_500_000_000_000L + random.nextInt(1_000_000_000));
+            }
+            item.setPriority(random.nextInt(5));
+            repository.update(item);
+        }
+        return repository;
+    }
+
+    private static void measure(String label,
+                                ToDoRepositoryWithFile format,
+                                InMemoryToDoRepository repository)
+            throws IOException {
+        byte[] bytes = null;
+        long writeTime = 0;
+        long readTime = 0;
+        for (int round = 0; round <= ROUNDS; round++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long start = System.nanoTime();
+            format.write(repository, out);
+            long written = System.nanoTime();
+            bytes = out.toByteArray();
+            InMemoryToDoRepository read =
+                    format.read(new ByteArrayInputStream(bytes));
+            long end = System.nanoTime();
+            check(repository, read);
+            if (round > 0) {    // the first round is a warm up
+                writeTime += written - start;
+                readTime += end - written;
+            }
+        }
+        System.out.printf("%-16s %12d %12.1f %12.1f%n",
+                label, bytes.length,
+                writeTime / 1e6 / ROUNDS, readTime / 1e6 / ROUNDS);
+    }
+
+    /**
+     * Makes sure that the repository that was read back is exactly the same
+     * as the one that was written.
+     */
+    private static void check(InMemoryToDoRepository expected,
+                              InMemoryToDoRepository actual) {
+        if (expected.snapshot().getCurrentId()
+                != actual.snapshot().getCurrentId()) {
+            throw new IllegalStateException("Round trip changed currentId.");
+        }
+        List<ToDoItem> expectedItems = expected.findAll();
+        List<ToDoItem> actualItems = actual.findAll();
+        if (expectedItems.size() != actualItems.size()) {
+            throw new IllegalStateException("Round trip lost items.");
+        }
+        Iterator<ToDoItem> iterator = actualItems.iterator();
+        for (ToDoItem item : expectedItems) {
+            ToDoItem other = iterator.next();
+            if (!item.getId().equals(other.getId())
+                    || !item.getName().equals(other.getName())
+                    || item.isCompleted() != other.isCompleted()
+                    || !(item.getDue() == null ? other.getDue() == null
+                    : item.getDue().equals(other.getDue()))
+                    || item.getPriority() != other.getPriority()) {
+                throw new IllegalStateException(
+                        "Round trip changed" + item + " to" + other);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package ml.cristatus.todo.repository;
+
+import ml.cristatus.todo.model.ToDoItem;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ToDoRepositoryWithCompression}.
+ *
+ * @author Subhomoy Haldar
+ * @version 0.3
+ */
+public class ToDoRepositoryWithCompressionTest {
+
+    private static final String UNICODE_NAME = "h\u00e9llo \u2713";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void savesAndLoadsAllTheAttributes() {
+        File file = new File(folder.getRoot(), "toDoData.dat");
+        ToDoRepository repository = new ToDoRepositoryWithCompression(file);
+        repository.insert("same name");
+        repository.insert(UNICODE_NAME);
+        ToDoItem item = repository.findById(repository.insert("same name"));
+        item.setCompleted(true);
+        item.setDue(1234L);
+        item.setPriority(-2);
+        repository.update(item);
+        repository.delete(repository.findById(1L));
+        repository.save();
+
+        ToDoRepository loaded = new ToDoRepositoryWithCompression(file);
+        List<ToDoItem> items = loaded.findAll();
+        assertEquals(2, items.size());
+        assertEquals(UNICODE_NAME, items.get(0).getName());
+        assertFalse(items.get(0).isCompleted());
+        assertEquals("same name", items.get(1).getName());
+        assertTrue(items.get(1).isCompleted());
+        assertEquals(Long.valueOf(1234), items.get(1).getDue());
+        assertEquals(-2, items.get(1).getPriority());
+        assertEquals(Long.valueOf(4), loaded.insert("fourth"));
+    }
+
+    @Test
+    public void startsEmptyWithAnEmptyFile() throws IOException {
+        File file = folder.newFile("toDoData.dat");
+        assertTrue(new ToDoRepositoryWithCompression(file).findAll().isEmpty());
+    }
+
+    @Test
+    public void keepsTheSavedFileWhenSavingFails() throws IOException {
+        File file = new File(folder.getRoot(), "toDoData.dat");
+        ToDoRepository repository = new ToDoRepositoryWithCompression(file);
+        repository.insert("saved");
+        repository.save();
+        byte[] saved = Files.readAllBytes(file.toPath());
+
+        ToDoRepository failing = new ToDoRepositoryWithCompression(file) {
+            @Override
+            protected void write(InMemoryToDoRepository repository,
+                                 OutputStream out) throws IOException {
+                out.write(1);
+                throw new IOException("Disk full.");
+            }
+        };
+        failing.insert("not saved");
+        failing.save();
+
+        assertArrayEquals(saved, Files.readAllBytes(file.toPath()));
+        assertEquals(Arrays.asList(file.getName()),
+                Arrays.asList(folder.getRoot().list()));
+    }
+
+    @Test
+    public void movesAnUnreadableFileAsideInsteadOfOverwritingIt()
+            throws IOException {
+        File file = folder.newFile("toDoData.dat");
+        byte[] garbage = "garbage!".getBytes("UTF-8");
+        Files.write(file.toPath(), garbage);
+
+        ToDoRepository repository = new ToDoRepositoryWithCompression(file);
+        for (int i = 0; i < 15; i++) {
+            assertTrue(repository.findAll().isEmpty());   // auto saves
+        }
+
+        File backup = new File(file.getPath() + ".bak");
+        assertArrayEquals(garbage, Files.readAllBytes(backup.toPath()));
+        assertTrue(new ToDoRepositoryWithCompression(file).findAll().isEmpty());
+    }
+
+    @Test
+    public void rejectsCorruptCounts() throws IOException {
+        for (int[] counts : Arrays.asList(
+                new int[]{-1, 0}, new int[]{0, -1}, new int[]{0, 1})) {
+            File file = folder.newFile();
+            try (DataOutputStream data = open(file)) {
+                data.writeLong(1);
+                data.writeInt(counts[0]);
+                data.writeInt(counts[1]);
+                data.writeInt(0);   // name index, but there are no names
+                data.writeLong(1);
+            }
+
+            assertTrue(new ToDoRepositoryWithCompression(file)
+                    .findAll().isEmpty());
+            assertTrue(new File(file.getPath() + ".bak").exists());
+        }
+    }
+
+    @Test
+    public void neverReusesTheIdOfALoadedItem() throws IOException {
+        File file = folder.newFile();
+        try (DataOutputStream data = open(file)) {
+            data.writeLong(1);  // stale currentId
+            data.writeInt(1);
+            data.writeInt(4);
+            data.write("name".getBytes("UTF-8"));
+            data.writeInt(1);
+            data.writeInt(0);
+            data.writeLong(5);
+            data.writeByte(0);
+            data.writeInt(0);
+        }
+
+        ToDoRepository repository = new ToDoRepositoryWithCompression(file);
+        assertEquals(Long.valueOf(6), repository.insert("new"));
+        assertEquals("name", repository.findById(5L).getName());
+    }
+
+    @Test
+    public void importsTheJSONFileWhenThereIsNoCompressedFile() {
+        File jsonFile = new File(folder.getRoot(), "toDoData.json");
+        ToDoRepository json = new ToDoRepositoryWithJSON(jsonFile);
+        json.insert("from json");
+        json.save();
+        File file = new File(folder.getRoot(), "toDoData.dat");
+
+        ToDoRepository repository =
+                new ToDoRepositoryWithCompression(file, jsonFile);
+        assertEquals("from json", repository.findById(1L).getName());
+        assertTrue(file.exists());
+
+        // once the compressed file exists, it is used on its own
+        repository.insert("compressed only");
+        repository.save();
+        json.insert("json only");
+        json.save();
+        assertEquals(2, new ToDoRepositoryWithCompression(file, jsonFile)
+                .findAll().size());
+        assertEquals("compressed only", new ToDoRepositoryWithCompression(
+                file, jsonFile).findById(2L).getName());
+    }
+
+    /**
+     * Opens the given file for writing in the compressed format, by hand.
+     */
+    private static DataOutputStream open(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        new DataOutputStream(out).writeInt(0x54444F31);
+        return new DataOutputStream(new DeflaterOutputStream(out));
+    }
+}
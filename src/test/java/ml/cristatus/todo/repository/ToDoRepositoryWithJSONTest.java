@@ -0,0 +1,78 @@
+package ml.cristatus.todo.repository;
+
+import ml.cristatus.todo.model.ToDoItem;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ToDoRepositoryWithJSON}.
+ *
+ * @author Subhomoy Haldar
+ * @version 0.3
+ */
+public class ToDoRepositoryWithJSONTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void savesAndLoadsAllTheAttributes() {
+        File file = new File(folder.getRoot(), "toDoData.json");
+        ToDoRepository repository = new ToDoRepositoryWithJSON(file);
+        repository.insert("first");
+        ToDoItem item = repository.findById(repository.insert("second"));
+        item.setCompleted(true);
+        item.setDue(1234L);
+        item.setPriority(-2);
+        repository.update(item);
+        repository.save();
+
+        ToDoItem loaded = new ToDoRepositoryWithJSON(file).findById(2L);
+        assertEquals("second", loaded.getName());
+        assertTrue(loaded.isCompleted());
+        assertEquals(Long.valueOf(1234), loaded.getDue());
+        assertEquals(-2, loaded.getPriority());
+    }
+
+    @Test
+    public void leavesAFileWithoutDataAlone() throws IOException {
+        for (String contents : new String[]{" \n", "null"}) {
+            File file = write(folder.newFile(), contents);
+
+            assertTrue(new ToDoRepositoryWithJSON(file).findAll().isEmpty());
+            assertTrue(file.exists());
+            assertFalse(new File(file.getPath() + ".bak").exists());
+        }
+    }
+
+    @Test
+    public void movesAMalformedFileAsideInsteadOfOverwritingIt()
+            throws IOException {
+        File file = write(folder.newFile("toDoData.json"),
+                "[\"not\", \"a\", \"repository\"]");
+
+        ToDoRepository repository = new ToDoRepositoryWithJSON(file);
+        assertTrue(repository.findAll().isEmpty());
+        repository.save();
+
+        assertTrue(new File(file.getPath() + ".bak").exists());
+        assertTrue(new ToDoRepositoryWithJSON(file).findAll().isEmpty());
+    }
+
+    private static File write(File file, String contents) throws IOException {
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(contents);
+        }
+        return file;
+    }
+}